@@ -0,0 +1,856 @@
+package de.scravy.pair;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, compressed set of pairs of <code>long</code>s.
+ *
+ * The pairs are kept in lexicographic order (the order defined by
+ * {@link Pairs#compare(Pair, Pair)}) in blocks of {@value #BLOCK_SIZE}. The
+ * first pair of every block is stored in a sparse index, all following pairs
+ * are stored as varint encoded deltas to their predecessor. Membership tests
+ * and seeks do a binary search on the index and decode a single block.
+ *
+ * Pairs of <code>int</code>s can be stored by widening them to
+ * <code>long</code>, see {@link #fromIntegerPairs(Iterable)}; this does not
+ * change their order and costs nothing extra since small values take few
+ * bytes anyway.
+ *
+ * @since 1.2.0
+ */
+public final class CompressedPairSet implements Iterable<Pair<Long, Long>> {
+
+  /**
+   * The number of pairs per block.
+   *
+   * @since 1.2.0
+   */
+  public static final int BLOCK_SIZE = 64;
+
+  private static final byte FORMAT_VERSION = 1;
+
+  private static final CompressedPairSet EMPTY = new CompressedPairSet(
+      0, new long[0], new long[0], new int[] { 0 }, new byte[0]);
+
+  private final int size;
+  private final long[] blockFirsts;
+  private final long[] blockSeconds;
+  private final int[] blockOffsets;
+  private final byte[] data;
+
+  private CompressedPairSet(final int size,
+      final long[] blockFirsts, final long[] blockSeconds,
+      final int[] blockOffsets, final byte[] data) {
+    this.size = size;
+    this.blockFirsts = blockFirsts;
+    this.blockSeconds = blockSeconds;
+    this.blockOffsets = blockOffsets;
+    this.data = data;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The empty set.
+   */
+  public static CompressedPairSet empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Creates a set from an {@link Iterable} of pairs. The pairs do not need to
+   * be sorted or distinct.
+   *
+   * @since 1.2.0
+   *
+   * @param pairs
+   *          The pairs.
+   * @return The set.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>pairs</code> is <code>null</code>, contains
+   *           <code>null</code> or a pair with a <code>null</code> component.
+   */
+  public static CompressedPairSet fromPairs(
+      final Iterable<Pair<Long, Long>> pairs) {
+    final LongPairArrays arrays = LongPairArrays.collect(pairs, "pairs");
+    return sortAndEncode(arrays.firsts, arrays.seconds, arrays.count);
+  }
+
+  /**
+   * Creates a set from an {@link Iterable} of pairs of {@link Integer}s. The
+   * components are widened to <code>long</code>.
+   *
+   * @since 1.2.0
+   *
+   * @param pairs
+   *          The pairs.
+   * @return The set.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>pairs</code> is <code>null</code>, contains
+   *           <code>null</code> or a pair with a <code>null</code> component.
+   */
+  public static CompressedPairSet fromIntegerPairs(
+      final Iterable<Pair<Integer, Integer>> pairs) {
+    final LongPairArrays arrays = LongPairArrays.collect(pairs, "pairs");
+    return sortAndEncode(arrays.firsts, arrays.seconds, arrays.count);
+  }
+
+  /**
+   * Creates a set from pairs given as two parallel arrays, i.e. the
+   * <code>i</code>-th pair is <code>(firsts[i], seconds[i])</code>. The pairs
+   * do not need to be sorted or distinct; the arrays are not modified.
+   *
+   * @since 1.2.0
+   *
+   * @param firsts
+   *          The first components.
+   * @param seconds
+   *          The second components.
+   * @param count
+   *          The number of pairs to take from the arrays.
+   * @return The set.
+   *
+   * @throws IllegalArgumentException
+   *           if either array is <code>null</code> or shorter than
+   *           <code>count</code>.
+   */
+  public static CompressedPairSet fromArrays(
+      final long[] firsts, final long[] seconds, final int count) {
+    if (firsts == null || seconds == null) {
+      throw new IllegalArgumentException(
+          "`firsts' and `seconds' must not be null.");
+    }
+    if (count < 0 || firsts.length < count || seconds.length < count) {
+      throw new IllegalArgumentException(
+          "`count' must be within the bounds of `firsts' and `seconds'.");
+    }
+    return sortAndEncode(Arrays.copyOf(firsts, count),
+        Arrays.copyOf(seconds, count), count);
+  }
+
+  /**
+   * Reads a set written by {@link #toByteArray()}.
+   *
+   * @since 1.2.0
+   *
+   * @param bytes
+   *          The serialized set.
+   * @return The set.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>bytes</code> is <code>null</code> or not a serialized
+   *           set.
+   */
+  public static CompressedPairSet fromByteArray(final byte[] bytes) {
+    if (bytes == null) {
+      throw new IllegalArgumentException("`bytes' must not be null.");
+    }
+    try {
+      final Reader reader = new Reader(bytes);
+      if (reader.readByte() != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unknown format version.");
+      }
+      final int size = reader.readLength();
+      final int blockCount = size / BLOCK_SIZE
+          + (size % BLOCK_SIZE == 0 ? 0 : 1);
+      if (blockCount > bytes.length) {
+        throw new IllegalArgumentException("Truncated input.");
+      }
+      final long[] blockFirsts = new long[blockCount];
+      final long[] blockSeconds = new long[blockCount];
+      final int[] blockOffsets = new int[blockCount + 1];
+      final Writer data = new Writer(bytes.length);
+      long headFirst = 0;
+      long headSecond = 0;
+      long lastFirst = 0;
+      long lastSecond = 0;
+      for (int block = 0; block < blockCount; block++) {
+        final long headDelta = reader.readVarint();
+        headFirst += headDelta;
+        headSecond = headDelta == 0
+            ? headSecond + reader.readVarint()
+            : unzigzag(reader.readVarint());
+        if (block > 0
+            && compare(lastFirst, lastSecond, headFirst, headSecond) >= 0) {
+          throw new IllegalArgumentException("Pairs are not ascending.");
+        }
+        blockFirsts[block] = headFirst;
+        blockSeconds[block] = headSecond;
+        blockOffsets[block] = data.length;
+        final int length = reader.readLength();
+        if (length > bytes.length - reader.position) {
+          throw new IllegalArgumentException("Truncated input.");
+        }
+        final int start = reader.position;
+        final int end = start + length;
+        lastFirst = headFirst;
+        lastSecond = headSecond;
+        // decode the block once so that cursors can trust the data
+        for (int i = 1; i < blockCount(size, block); i++) {
+          final long firstDelta = reader.readVarint();
+          final long first = lastFirst + firstDelta;
+          final long second = firstDelta == 0
+              ? lastSecond + reader.readVarint()
+              : unzigzag(reader.readVarint());
+          if (reader.position > end) {
+            throw new IllegalArgumentException(
+                "Block holds fewer pairs than expected.");
+          }
+          if (compare(lastFirst, lastSecond, first, second) >= 0) {
+            throw new IllegalArgumentException("Pairs are not ascending.");
+          }
+          lastFirst = first;
+          lastSecond = second;
+        }
+        if (reader.position != end) {
+          throw new IllegalArgumentException(
+              "Block holds more pairs than expected.");
+        }
+        data.write(bytes, start, length);
+      }
+      if (reader.position != bytes.length) {
+        throw new IllegalArgumentException("Unexpected trailing bytes.");
+      }
+      blockOffsets[blockCount] = data.length;
+      return new CompressedPairSet(size,
+          blockFirsts, blockSeconds, blockOffsets, data.toByteArray());
+    } catch (final IndexOutOfBoundsException exc) {
+      throw new IllegalArgumentException("Truncated input.", exc);
+    }
+  }
+
+  /**
+   * Writes this set into a compact byte array which can be read back using
+   * {@link #fromByteArray(byte[])}.
+   *
+   * @since 1.2.0
+   *
+   * @return The serialized set.
+   */
+  public byte[] toByteArray() {
+    final Writer writer = new Writer(data.length + 16);
+    writer.write(FORMAT_VERSION);
+    writer.writeVarint(size);
+    long first = 0;
+    long second = 0;
+    for (int block = 0; block < blockFirsts.length; block++) {
+      writer.writeDelta(first, second, blockFirsts[block], blockSeconds[block]);
+      first = blockFirsts[block];
+      second = blockSeconds[block];
+      final int length = blockOffsets[block + 1] - blockOffsets[block];
+      writer.writeVarint(length);
+      writer.write(data, blockOffsets[block], length);
+    }
+    return writer.toByteArray();
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The number of pairs in this set.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return Whether this set is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The approximate number of bytes this set occupies on the heap,
+   *         not counting object headers.
+   */
+  public long sizeInBytes() {
+    return data.length + 20L * blockFirsts.length + 4;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @param first
+   *          The first component.
+   * @param second
+   *          The second component.
+   * @return Whether the pair <code>(first, second)</code> is in this set.
+   */
+  public boolean contains(final long first, final long second) {
+    final int block = findBlock(first, second, 0);
+    if (block < 0) {
+      return false;
+    }
+    final Cursor cursor = new Cursor();
+    cursor.enterBlock(block);
+    return cursor.seekWithinBlock(first, second)
+        && cursor.first == first && cursor.second == second;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return A new cursor positioned before the first pair of this set.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return An iterator over the pairs of this set, in ascending order.
+   */
+  @Override
+  public Iterator<Pair<Long, Long>> iterator() {
+    final Cursor cursor = new Cursor();
+    return new Iterator<Pair<Long, Long>>() {
+
+      private boolean hasNext = cursor.next();
+
+      @Override
+      public boolean hasNext() {
+        return hasNext;
+      }
+
+      @Override
+      public Pair<Long, Long> next() {
+        if (!hasNext) {
+          throw new NoSuchElementException();
+        }
+        final Pair<Long, Long> pair = Pairs.from(cursor.first, cursor.second);
+        hasNext = cursor.next();
+        return pair;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Computes the intersection of this and another set without decompressing
+   * either of them. Blocks that can not contain common pairs are skipped.
+   *
+   * @since 1.2.0
+   *
+   * @param other
+   *          The other set.
+   * @return The pairs that are contained in both sets.
+   */
+  public CompressedPairSet intersection(final CompressedPairSet other) {
+    final Cursor left = cursor();
+    final Cursor right = other.cursor();
+    final Encoder encoder = new Encoder(Math.min(data.length,
+        other.data.length));
+    boolean valid = left.next() && right.next();
+    while (valid) {
+      final int comparison = compare(
+          left.first, left.second, right.first, right.second);
+      if (comparison == 0) {
+        encoder.add(left.first, left.second);
+        valid = left.next() && right.next();
+      } else if (comparison < 0) {
+        valid = left.seek(right.first, right.second);
+      } else {
+        valid = right.seek(left.first, left.second);
+      }
+    }
+    return encoder.build();
+  }
+
+  /**
+   * Computes the union of this and another set without decompressing either
+   * of them.
+   *
+   * @since 1.2.0
+   *
+   * @param other
+   *          The other set.
+   * @return The pairs that are contained in either set.
+   */
+  public CompressedPairSet union(final CompressedPairSet other) {
+    final Cursor left = cursor();
+    final Cursor right = other.cursor();
+    final Encoder encoder = new Encoder(data.length + other.data.length);
+    boolean leftValid = left.next();
+    boolean rightValid = right.next();
+    while (leftValid && rightValid) {
+      final int comparison = compare(
+          left.first, left.second, right.first, right.second);
+      if (comparison <= 0) {
+        encoder.add(left.first, left.second);
+        leftValid = left.next();
+        if (comparison == 0) {
+          rightValid = right.next();
+        }
+      } else {
+        encoder.add(right.first, right.second);
+        rightValid = right.next();
+      }
+    }
+    while (leftValid) {
+      encoder.add(left.first, left.second);
+      leftValid = left.next();
+    }
+    while (rightValid) {
+      encoder.add(right.first, right.second);
+      rightValid = right.next();
+    }
+    return encoder.build();
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof CompressedPairSet)) {
+      return false;
+    }
+    final CompressedPairSet that = (CompressedPairSet) other;
+    return size == that.size
+        && Arrays.equals(blockFirsts, that.blockFirsts)
+        && Arrays.equals(blockSeconds, that.blockSeconds)
+        && Arrays.equals(data, that.data);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + size;
+    result = prime * result + Arrays.hashCode(blockFirsts);
+    result = prime * result + Arrays.hashCode(blockSeconds);
+    result = prime * result + Arrays.hashCode(data);
+    return result;
+  }
+
+  /**
+   * A cursor over the pairs of a {@link CompressedPairSet}. It decodes one pair
+   * at a time and does not allocate while moving.
+   *
+   * @since 1.2.0
+   */
+  public final class Cursor {
+
+    private int block = -1;
+    private int indexInBlock;
+    private int position;
+    private long first;
+    private long second;
+    private boolean valid;
+
+    private Cursor() {
+    }
+
+    /**
+     * Moves to the next pair.
+     *
+     * @since 1.2.0
+     *
+     * @return Whether there is a current pair after moving.
+     */
+    public boolean next() {
+      if (block >= 0 && indexInBlock + 1 < blockCount(block)) {
+        decodeNext();
+        return true;
+      }
+      if (block + 1 < blockFirsts.length) {
+        enterBlock(block + 1);
+        return true;
+      }
+      block = blockFirsts.length;
+      valid = false;
+      return false;
+    }
+
+    /**
+     * Moves forward to the first pair that is greater than or equal to
+     * <code>(first, second)</code>. Never moves backwards.
+     *
+     * @since 1.2.0
+     *
+     * @param first
+     *          The first component of the target pair.
+     * @param second
+     *          The second component of the target pair.
+     * @return Whether there is a current pair after moving.
+     */
+    public boolean seek(final long first, final long second) {
+      if (valid && compare(this.first, this.second, first, second) >= 0) {
+        return true;
+      }
+      if (block >= blockFirsts.length - 1 && !valid) {
+        // exhausted, or an empty set that has no block to enter
+        block = blockFirsts.length;
+        return false;
+      }
+      final int target = findBlock(first, second, Math.max(block, 0));
+      if (target > block) {
+        enterBlock(target);
+      } else if (block < 0) {
+        enterBlock(0);
+      }
+      if (seekWithinBlock(first, second)) {
+        return true;
+      }
+      return next();
+    }
+
+    /**
+     * @since 1.2.0
+     *
+     * @return Whether the cursor is positioned on a pair.
+     */
+    public boolean isValid() {
+      return valid;
+    }
+
+    /**
+     * @since 1.2.0
+     *
+     * @return The first component of the current pair.
+     */
+    public long first() {
+      return first;
+    }
+
+    /**
+     * @since 1.2.0
+     *
+     * @return The second component of the current pair.
+     */
+    public long second() {
+      return second;
+    }
+
+    private void enterBlock(final int block) {
+      this.block = block;
+      this.indexInBlock = 0;
+      this.position = blockOffsets[block];
+      this.first = blockFirsts[block];
+      this.second = blockSeconds[block];
+      this.valid = true;
+    }
+
+    private void decodeNext() {
+      final long firstDelta = readVarint();
+      first += firstDelta;
+      second = firstDelta == 0 ? second + readVarint() : unzigzag(readVarint());
+      indexInBlock += 1;
+    }
+
+    /**
+     * Decodes forward within the current block until the current pair is not
+     * less than the target. Returns false if the block is exhausted.
+     */
+    private boolean seekWithinBlock(final long first, final long second) {
+      final int count = blockCount(block);
+      while (compare(this.first, this.second, first, second) < 0) {
+        if (indexInBlock + 1 >= count) {
+          return false;
+        }
+        decodeNext();
+      }
+      return true;
+    }
+
+    /**
+     * Does not check bounds: the data is either written by an {@link Encoder}
+     * or fully decoded once by {@link CompressedPairSet#fromByteArray(byte[])}.
+     */
+    private long readVarint() {
+      long value = 0;
+      int shift = 0;
+      byte current;
+      do {
+        current = data[position++];
+        value |= (long) (current & 0x7F) << shift;
+        shift += 7;
+      } while (current < 0);
+      return value;
+    }
+  }
+
+  private int blockCount(final int block) {
+    return blockCount(size, block);
+  }
+
+  private static int blockCount(final int size, final int block) {
+    return Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+  }
+
+  /**
+   * Finds the last block at or after <code>from</code> whose first pair is not
+   * greater than <code>(first, second)</code>, or <code>from - 1</code> if
+   * there is none.
+   */
+  private int findBlock(final long first, final long second, final int from) {
+    int low = from;
+    int high = blockFirsts.length - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      if (compare(blockFirsts[middle], blockSeconds[middle],
+          first, second) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * Lexicographic comparison, consistent with
+   * {@link Pairs#compare(Comparable, Comparable, Comparable, Comparable)} for
+   * non-null {@link Long}s.
+   */
+  private static int compare(final long firstOfLeft, final long secondOfLeft,
+      final long firstOfRight, final long secondOfRight) {
+    final int comparisonOfFirsts = Long.compare(firstOfLeft, firstOfRight);
+    if (comparisonOfFirsts != 0) {
+      return comparisonOfFirsts;
+    }
+    return Long.compare(secondOfLeft, secondOfRight);
+  }
+
+  private static long zigzag(final long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(final long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static CompressedPairSet sortAndEncode(
+      final long[] firsts, final long[] seconds, final int count) {
+    if (!isSorted(firsts, seconds, count)) {
+      mergeSort(firsts, seconds, count);
+    }
+    final Encoder encoder = new Encoder(count * 2);
+    for (int i = 0; i < count; i++) {
+      if (i == 0 || firsts[i] != firsts[i - 1] || seconds[i] != seconds[i - 1]) {
+        encoder.add(firsts[i], seconds[i]);
+      }
+    }
+    return encoder.build();
+  }
+
+  private static boolean isSorted(
+      final long[] firsts, final long[] seconds, final int count) {
+    for (int i = 1; i < count; i++) {
+      if (compare(firsts[i - 1], seconds[i - 1], firsts[i], seconds[i]) > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Bottom-up merge sort of the parallel arrays, in place (using a buffer of
+   * the same size).
+   */
+  private static void mergeSort(
+      final long[] firsts, final long[] seconds, final int count) {
+    long[] sourceFirsts = firsts;
+    long[] sourceSeconds = seconds;
+    long[] targetFirsts = new long[count];
+    long[] targetSeconds = new long[count];
+    for (int width = 1; width < count; width *= 2) {
+      for (int low = 0; low < count; low += 2 * width) {
+        final int middle = Math.min(low + width, count);
+        final int high = Math.min(low + 2 * width, count);
+        int left = low;
+        int right = middle;
+        for (int i = low; i < high; i++) {
+          if (left < middle && (right >= high || compare(
+              sourceFirsts[left], sourceSeconds[left],
+              sourceFirsts[right], sourceSeconds[right]) <= 0)) {
+            targetFirsts[i] = sourceFirsts[left];
+            targetSeconds[i] = sourceSeconds[left];
+            left += 1;
+          } else {
+            targetFirsts[i] = sourceFirsts[right];
+            targetSeconds[i] = sourceSeconds[right];
+            right += 1;
+          }
+        }
+      }
+      final long[] swapFirsts = sourceFirsts;
+      final long[] swapSeconds = sourceSeconds;
+      sourceFirsts = targetFirsts;
+      sourceSeconds = targetSeconds;
+      targetFirsts = swapFirsts;
+      targetSeconds = swapSeconds;
+    }
+    if (sourceFirsts != firsts) {
+      System.arraycopy(sourceFirsts, 0, firsts, 0, count);
+      System.arraycopy(sourceSeconds, 0, seconds, 0, count);
+    }
+  }
+
+  /**
+   * Builds a set from pairs that are added in strictly ascending order.
+   */
+  private static final class Encoder {
+
+    private final Writer writer;
+    private long[] blockFirsts = new long[4];
+    private long[] blockSeconds = new long[4];
+    private int[] blockOffsets = new int[5];
+    private int blockCount;
+    private int size;
+    private long first;
+    private long second;
+
+    Encoder(final int expectedBytes) {
+      this.writer = new Writer(expectedBytes);
+    }
+
+    void add(final long first, final long second) {
+      if (size % BLOCK_SIZE == 0) {
+        if (blockCount == blockFirsts.length) {
+          final int capacity = blockCount * 2;
+          blockFirsts = Arrays.copyOf(blockFirsts, capacity);
+          blockSeconds = Arrays.copyOf(blockSeconds, capacity);
+          blockOffsets = Arrays.copyOf(blockOffsets, capacity + 1);
+        }
+        blockFirsts[blockCount] = first;
+        blockSeconds[blockCount] = second;
+        blockOffsets[blockCount] = writer.length;
+        blockCount += 1;
+      } else {
+        writer.writeDelta(this.first, this.second, first, second);
+      }
+      this.first = first;
+      this.second = second;
+      size += 1;
+    }
+
+    CompressedPairSet build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      blockOffsets[blockCount] = writer.length;
+      return new CompressedPairSet(size,
+          Arrays.copyOf(blockFirsts, blockCount),
+          Arrays.copyOf(blockSeconds, blockCount),
+          Arrays.copyOf(blockOffsets, blockCount + 1),
+          writer.toByteArray());
+    }
+  }
+
+  private static final class Writer {
+
+    private byte[] bytes;
+    private int length;
+
+    Writer(final int capacity) {
+      this.bytes = new byte[Math.max(16, capacity)];
+    }
+
+    private void ensureCapacity(final int additional) {
+      if (length + additional > bytes.length) {
+        bytes = Arrays.copyOf(bytes,
+            Math.max(length + additional, bytes.length + (bytes.length >> 1)));
+      }
+    }
+
+    void write(final byte value) {
+      ensureCapacity(1);
+      bytes[length++] = value;
+    }
+
+    void write(final byte[] source, final int offset, final int count) {
+      ensureCapacity(count);
+      System.arraycopy(source, offset, bytes, length, count);
+      length += count;
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[length++] = (byte) value;
+    }
+
+    /**
+     * Writes <code>(first, second)</code> relative to its predecessor: the
+     * difference of the first components, followed by the difference of the
+     * second components if the first ones are equal or the zigzag encoded
+     * second component otherwise.
+     */
+    void writeDelta(final long previousFirst, final long previousSecond,
+        final long first, final long second) {
+      final long firstDelta = first - previousFirst;
+      writeVarint(firstDelta);
+      writeVarint(firstDelta == 0 ? second - previousSecond : zigzag(second));
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, length);
+    }
+  }
+
+  private static final class Reader {
+
+    private final byte[] bytes;
+    private int position;
+
+    Reader(final byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    byte readByte() {
+      return bytes[position++];
+    }
+
+    int readLength() {
+      final long value = readVarint();
+      if (value < 0 || value > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Invalid length.");
+      }
+      return (int) value;
+    }
+
+    /**
+     * Reads a varint as written by {@link Writer#writeVarint(long)}. Only the
+     * shortest encoding of a value is accepted, so that equal sets always
+     * have equal bytes.
+     */
+    long readVarint() {
+      long value = 0;
+      int shift = 0;
+      byte current;
+      do {
+        if (shift > 63) {
+          throw new IllegalArgumentException("Malformed varint.");
+        }
+        current = bytes[position++];
+        if (shift == 63 && (current & 0x7F) > 1) {
+          throw new IllegalArgumentException("Varint exceeds 64 bits.");
+        }
+        if (shift > 0 && current == 0) {
+          throw new IllegalArgumentException("Overlong varint.");
+        }
+        value |= (long) (current & 0x7F) << shift;
+        shift += 7;
+      } while (current < 0);
+      return value;
+    }
+  }
+}
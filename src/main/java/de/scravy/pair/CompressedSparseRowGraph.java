@@ -0,0 +1,494 @@
+package de.scravy.pair;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A directed graph in compressed sparse row (CSR) form, built from an edge list
+ * of pairs <code>(source, target)</code>.
+ *
+ * The vertices of the graph are the distinct <code>long</code> ids that occur
+ * in the edge list. They are numbered densely from <code>0</code> to
+ * <code>vertexCount() - 1</code> in ascending order of their ids, and all
+ * traversal methods work on these dense indices. Use {@link #indexOf(long)}
+ * and {@link #vertex(int)} to translate between ids and indices.
+ *
+ * The neighbours of every vertex are kept in a single primitive array, sorted
+ * ascending per vertex. Parallel edges are kept as they are (the graph is a
+ * multigraph if the edge list contains duplicates). Instances are immutable.
+ *
+ * @since 1.2.0
+ */
+public final class CompressedSparseRowGraph {
+
+  /**
+   * Receives the neighbours of a vertex, see
+   * {@link CompressedSparseRowGraph#forEachNeighbour(int, NeighbourVisitor)}.
+   *
+   * @since 1.2.0
+   */
+  public interface NeighbourVisitor {
+
+    /**
+     * Called once for every outgoing edge of the visited vertex.
+     *
+     * @since 1.2.0
+     *
+     * @param neighbour
+     *          The index of the target vertex.
+     */
+    void visit(int neighbour);
+  }
+
+  /**
+   * Below this many elements work is done on the calling thread.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  private final long[] vertices;
+  private final int[] offsets;
+  private final int[] neighbours;
+
+  private CompressedSparseRowGraph(
+      final long[] vertices, final int[] offsets, final int[] neighbours) {
+    this.vertices = vertices;
+    this.offsets = offsets;
+    this.neighbours = neighbours;
+  }
+
+  /**
+   * Builds a graph from an {@link Iterable} of pairs <code>(source,
+   * target)</code>.
+   *
+   * @since 1.2.0
+   *
+   * @param edges
+   *          The edges.
+   * @return The graph.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>edges</code> is <code>null</code>, contains
+   *           <code>null</code> or a pair with a <code>null</code> component.
+   */
+  public static CompressedSparseRowGraph fromPairs(
+      final Iterable<Pair<Long, Long>> edges) {
+    final LongPairArrays arrays = LongPairArrays.collect(edges, "edges");
+    return fromArrays(arrays.firsts, arrays.seconds, arrays.count);
+  }
+
+  /**
+   * Builds a graph from an edge list given as two parallel arrays, i.e. the
+   * <code>i</code>-th edge is <code>(sources[i], targets[i])</code>.
+   *
+   * @since 1.2.0
+   *
+   * @param sources
+   *          The source vertex ids.
+   * @param targets
+   *          The target vertex ids.
+   * @param edgeCount
+   *          The number of edges to take from the arrays.
+   * @return The graph.
+   *
+   * @throws IllegalArgumentException
+   *           if either array is <code>null</code> or shorter than
+   *           <code>edgeCount</code>.
+   */
+  public static CompressedSparseRowGraph fromArrays(
+      final long[] sources, final long[] targets, final int edgeCount) {
+    if (sources == null || targets == null) {
+      throw new IllegalArgumentException(
+          "`sources' and `targets' must not be null.");
+    }
+    if (edgeCount < 0
+        || sources.length < edgeCount || targets.length < edgeCount) {
+      throw new IllegalArgumentException(
+          "`edgeCount' must be within the bounds of `sources' and `targets'.");
+    }
+    final long[] vertices = distinctVertices(sources, targets, edgeCount);
+    final int[] rows = new int[edgeCount];
+    final int[] columns = new int[edgeCount];
+    parallel(edgeCount, new Body() {
+      @Override
+      public void apply(final int from, final int to) {
+        for (int i = from; i < to; i++) {
+          rows[i] = Arrays.binarySearch(vertices, sources[i]);
+          columns[i] = Arrays.binarySearch(vertices, targets[i]);
+        }
+      }
+    });
+    final int[] offsets = new int[vertices.length + 1];
+    final int[] neighbours = countingSort(vertices.length, rows, columns,
+        offsets);
+    return new CompressedSparseRowGraph(vertices, offsets, neighbours);
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The number of vertices in this graph.
+   */
+  public int vertexCount() {
+    return vertices.length;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The number of edges in this graph.
+   */
+  public int edgeCount() {
+    return neighbours.length;
+  }
+
+  /**
+   * Translates a vertex index into the id it was built from.
+   *
+   * @since 1.2.0
+   *
+   * @param index
+   *          The vertex index.
+   * @return The vertex id.
+   */
+  public long vertex(final int index) {
+    return vertices[index];
+  }
+
+  /**
+   * Translates a vertex id into its dense index.
+   *
+   * @since 1.2.0
+   *
+   * @param vertex
+   *          The vertex id.
+   * @return The vertex index or a negative value if there is no such vertex.
+   */
+  public int indexOf(final long vertex) {
+    final int index = Arrays.binarySearch(vertices, vertex);
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @param vertex
+   *          The vertex index.
+   * @return The number of outgoing edges of the given vertex.
+   */
+  public int degree(final int vertex) {
+    return offsets[vertex + 1] - offsets[vertex];
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The out-degree of every vertex, indexed by vertex index.
+   */
+  public int[] degrees() {
+    final int[] degrees = new int[vertices.length];
+    for (int i = 0; i < degrees.length; i++) {
+      degrees[i] = offsets[i + 1] - offsets[i];
+    }
+    return degrees;
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @return The largest out-degree in this graph or <code>0</code> if the graph
+   *         is empty.
+   */
+  public int maxDegree() {
+    int max = 0;
+    for (int i = 0; i < vertices.length; i++) {
+      max = Math.max(max, offsets[i + 1] - offsets[i]);
+    }
+    return max;
+  }
+
+  /**
+   * The position of the first neighbour of <code>vertex</code>, to be used
+   * with {@link #neighbourAt(int)}. Iterating from
+   * <code>neighboursStart(v)</code> (inclusive) to
+   * <code>neighboursEnd(v)</code> (exclusive) visits all neighbours of
+   * <code>v</code> without allocating.
+   *
+   * @since 1.2.0
+   *
+   * @param vertex
+   *          The vertex index.
+   * @return The position of the first neighbour.
+   */
+  public int neighboursStart(final int vertex) {
+    return offsets[vertex];
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @param vertex
+   *          The vertex index.
+   * @return The position after the last neighbour, see
+   *         {@link #neighboursStart(int)}.
+   */
+  public int neighboursEnd(final int vertex) {
+    return offsets[vertex + 1];
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @param position
+   *          A position between {@link #neighboursStart(int)} and
+   *          {@link #neighboursEnd(int)} of some vertex.
+   * @return The vertex index of the neighbour at that position.
+   */
+  public int neighbourAt(final int position) {
+    return neighbours[position];
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @param vertex
+   *          The vertex index.
+   * @return A copy of the neighbours of the given vertex.
+   */
+  public int[] neighbours(final int vertex) {
+    return Arrays.copyOfRange(neighbours, offsets[vertex], offsets[vertex + 1]);
+  }
+
+  /**
+   * Calls the visitor for every neighbour of the given vertex, in ascending
+   * order.
+   *
+   * @since 1.2.0
+   *
+   * @param vertex
+   *          The vertex index.
+   * @param visitor
+   *          The visitor.
+   */
+  public void forEachNeighbour(final int vertex,
+      final NeighbourVisitor visitor) {
+    final int end = offsets[vertex + 1];
+    for (int i = offsets[vertex]; i < end; i++) {
+      visitor.visit(neighbours[i]);
+    }
+  }
+
+  /**
+   * @since 1.2.0
+   *
+   * @param source
+   *          The source vertex index.
+   * @param target
+   *          The target vertex index.
+   * @return Whether there is an edge from <code>source</code> to
+   *         <code>target</code>.
+   */
+  public boolean hasEdge(final int source, final int target) {
+    return Arrays.binarySearch(
+        neighbours, offsets[source], offsets[source + 1], target) >= 0;
+  }
+
+  /**
+   * Builds the transposed graph, i.e. the graph with every edge reversed. The
+   * transposed graph has the same vertex indices as this one.
+   *
+   * @since 1.2.0
+   *
+   * @return The transposed graph.
+   */
+  public CompressedSparseRowGraph transpose() {
+    final int[] rows = new int[neighbours.length];
+    parallel(vertices.length, new Body() {
+      @Override
+      public void apply(final int from, final int to) {
+        for (int v = from; v < to; v++) {
+          Arrays.fill(rows, offsets[v], offsets[v + 1], v);
+        }
+      }
+    });
+    final int[] transposedOffsets = new int[vertices.length + 1];
+    final int[] transposedNeighbours = countingSort(vertices.length,
+        neighbours, rows, transposedOffsets);
+    return new CompressedSparseRowGraph(vertices, transposedOffsets,
+        transposedNeighbours);
+  }
+
+  /**
+   * Performs a breadth first search starting at <code>source</code>.
+   *
+   * @since 1.2.0
+   *
+   * @param source
+   *          The index of the start vertex.
+   * @return The number of hops from <code>source</code> to every vertex,
+   *         indexed by vertex index, or <code>-1</code> for vertices that are
+   *         not reachable.
+   */
+  public int[] breadthFirstSearch(final int source) {
+    final int[] distances = new int[vertices.length];
+    Arrays.fill(distances, -1);
+    final int[] queue = new int[vertices.length];
+    int head = 0;
+    int tail = 0;
+    distances[source] = 0;
+    queue[tail++] = source;
+    while (head < tail) {
+      final int vertex = queue[head++];
+      final int distance = distances[vertex] + 1;
+      final int end = offsets[vertex + 1];
+      for (int i = offsets[vertex]; i < end; i++) {
+        final int neighbour = neighbours[i];
+        if (distances[neighbour] < 0) {
+          distances[neighbour] = distance;
+          queue[tail++] = neighbour;
+        }
+      }
+    }
+    return distances;
+  }
+
+  /**
+   * Sorts and deduplicates sources and targets separately and merges them, so
+   * that no array larger than <code>edgeCount</code> is needed.
+   */
+  private static long[] distinctVertices(
+      final long[] sources, final long[] targets, final int edgeCount) {
+    final long[] left = Arrays.copyOf(sources, edgeCount);
+    final long[] right = Arrays.copyOf(targets, edgeCount);
+    Arrays.sort(left);
+    Arrays.sort(right);
+    final int leftCount = unique(left);
+    final int rightCount = unique(right);
+    long distinct = 0;
+    for (int i = 0, j = 0; i < leftCount || j < rightCount; distinct++) {
+      if (j >= rightCount || (i < leftCount && left[i] < right[j])) {
+        i += 1;
+      } else if (i >= leftCount || right[j] < left[i]) {
+        j += 1;
+      } else {
+        i += 1;
+        j += 1;
+      }
+    }
+    if (distinct > LongPairArrays.MAX_ARRAY_LENGTH) {
+      throw new IllegalArgumentException(
+          "Too many distinct vertices: " + distinct);
+    }
+    final long[] vertices = new long[(int) distinct];
+    for (int i = 0, j = 0, k = 0; k < vertices.length; k++) {
+      if (j >= rightCount || (i < leftCount && left[i] < right[j])) {
+        vertices[k] = left[i++];
+      } else if (i >= leftCount || right[j] < left[i]) {
+        vertices[k] = right[j++];
+      } else {
+        vertices[k] = left[i++];
+        j += 1;
+      }
+    }
+    return vertices;
+  }
+
+  /**
+   * Removes adjacent duplicates from a sorted array, in place.
+   *
+   * @return The number of distinct values now at the front of the array.
+   */
+  private static int unique(final long[] values) {
+    int distinct = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (i == 0 || values[i] != values[i - 1]) {
+        values[distinct++] = values[i];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Sorts the edges <code>(rows[i], columns[i])</code> by row using a
+   * (parallel) counting sort. Fills in <code>offsets</code> and returns the
+   * columns in row order, sorted ascending within every row.
+   */
+  private static int[] countingSort(final int vertexCount,
+      final int[] rows, final int[] columns, final int[] offsets) {
+    final int edgeCount = rows.length;
+    final AtomicIntegerArray counts = new AtomicIntegerArray(vertexCount);
+    parallel(edgeCount, new Body() {
+      @Override
+      public void apply(final int from, final int to) {
+        for (int i = from; i < to; i++) {
+          counts.incrementAndGet(rows[i]);
+        }
+      }
+    });
+    for (int v = 0; v < vertexCount; v++) {
+      offsets[v + 1] = offsets[v] + counts.get(v);
+    }
+    final AtomicIntegerArray cursors = new AtomicIntegerArray(
+        Arrays.copyOf(offsets, vertexCount));
+    final int[] sorted = new int[edgeCount];
+    parallel(edgeCount, new Body() {
+      @Override
+      public void apply(final int from, final int to) {
+        for (int i = from; i < to; i++) {
+          sorted[cursors.getAndIncrement(rows[i])] = columns[i];
+        }
+      }
+    });
+    parallel(vertexCount, new Body() {
+      @Override
+      public void apply(final int from, final int to) {
+        for (int v = from; v < to; v++) {
+          Arrays.sort(sorted, offsets[v], offsets[v + 1]);
+        }
+      }
+    });
+    return sorted;
+  }
+
+  private interface Body {
+    void apply(int from, int to);
+  }
+
+  private static void parallel(final int length, final Body body) {
+    if (length < PARALLEL_THRESHOLD) {
+      body.apply(0, length);
+    } else {
+      SharedPool.INSTANCE.invoke(new RangeAction(body, 0, length));
+    }
+  }
+
+  private static final class SharedPool {
+    static final ForkJoinPool INSTANCE = new ForkJoinPool();
+  }
+
+  @SuppressWarnings("serial")
+  private static final class RangeAction extends RecursiveAction {
+
+    private final Body body;
+    private final int from;
+    private final int to;
+
+    RangeAction(final Body body, final int from, final int to) {
+      this.body = body;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_THRESHOLD) {
+        body.apply(from, to);
+      } else {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new RangeAction(body, from, middle),
+            new RangeAction(body, middle, to));
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package de.scravy.pair;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The components of an {@link Iterable} of pairs of numbers, collected into two
+ * parallel <code>long</code> arrays.
+ *
+ * @since 1.2.0
+ */
+final class LongPairArrays {
+
+  /**
+   * The largest array length that is safe to allocate on common VMs.
+   */
+  static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+  final long[] firsts;
+  final long[] seconds;
+  final int count;
+
+  private LongPairArrays(
+      final long[] firsts, final long[] seconds, final int count) {
+    this.firsts = firsts;
+    this.seconds = seconds;
+    this.count = count;
+  }
+
+  /**
+   * Collects the components of the given pairs, widening them to
+   * <code>long</code>. The arrays may be longer than <code>count</code>.
+   *
+   * @param pairs
+   *          The pairs.
+   * @param name
+   *          The name of the argument, used in error messages.
+   * @return The collected components.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>pairs</code> is <code>null</code>, contains
+   *           <code>null</code> or a pair with a <code>null</code> component,
+   *           or if there are more pairs than an array can hold.
+   */
+  static LongPairArrays collect(
+      final Iterable<? extends Pair<? extends Number, ? extends Number>> pairs,
+      final String name) {
+    if (pairs == null) {
+      throw new IllegalArgumentException("`" + name + "' must not be null.");
+    }
+    int capacity = pairs instanceof Collection
+        ? Math.min(((Collection<?>) pairs).size(), MAX_ARRAY_LENGTH) : 16;
+    long[] firsts = new long[capacity];
+    long[] seconds = new long[capacity];
+    int count = 0;
+    for (final Pair<? extends Number, ? extends Number> pair : pairs) {
+      if (pair == null
+          || pair.getFirst() == null || pair.getSecond() == null) {
+        throw new IllegalArgumentException("`" + name
+            + "' must not contain null pairs or null components.");
+      }
+      if (count == capacity) {
+        if (count == MAX_ARRAY_LENGTH) {
+          throw new IllegalArgumentException(
+              "Too many " + name + ": more than " + MAX_ARRAY_LENGTH);
+        }
+        capacity = (int) Math.min(MAX_ARRAY_LENGTH,
+            Math.max(16, (long) capacity + (capacity >> 1)));
+        firsts = Arrays.copyOf(firsts, capacity);
+        seconds = Arrays.copyOf(seconds, capacity);
+      }
+      firsts[count] = pair.getFirst().longValue();
+      seconds[count] = pair.getSecond().longValue();
+      count += 1;
+    }
+    return new LongPairArrays(firsts, seconds, count);
+  }
+}
@@ -280,6 +280,48 @@ public class Pairs {
     }
   }
 
+  /**
+   * Builds a {@link CompressedSparseRowGraph} from an {@link Iterable} of
+   * edges <code>(source, target)</code>.
+   *
+   * Compared to collecting the edges into a <code>Map&lt;Long,
+   * List&lt;Long&gt;&gt;</code> using {@link #toMap(Iterable, Map)}, the graph
+   * keeps the adjacency in primitive arrays.
+   *
+   * @since 1.2.0
+   *
+   * @param edges
+   *          The edges.
+   * @return The graph.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>edges</code> is <code>null</code>, contains
+   *           <code>null</code> or a pair with a <code>null</code> component.
+   */
+  public static CompressedSparseRowGraph toGraph(
+      final Iterable<Pair<Long, Long>> edges) {
+    return CompressedSparseRowGraph.fromPairs(edges);
+  }
+
+  /**
+   * Creates a {@link CompressedPairSet} from an {@link Iterable} of pairs
+   * <code>(a, b)</code>.
+   *
+   * @since 1.2.0
+   *
+   * @param pairs
+   *          The pairs.
+   * @return The compressed set of the distinct pairs.
+   *
+   * @throws IllegalArgumentException
+   *           if <code>pairs</code> is <code>null</code>, contains
+   *           <code>null</code> or a pair with a <code>null</code> component.
+   */
+  public static CompressedPairSet toCompressedSet(
+      final Iterable<Pair<Long, Long>> pairs) {
+    return CompressedPairSet.fromPairs(pairs);
+  }
+
   /**
    * Compares two pairs for equality.
    *
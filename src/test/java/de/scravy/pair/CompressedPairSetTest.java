@@ -0,0 +1,263 @@
+package de.scravy.pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressedPairSetTest {
+
+  private static TreeSet<ComparablePair<Long, Long>> randomPairs(
+      final Random random, final int count, final int bound) {
+    final TreeSet<ComparablePair<Long, Long>> pairs = new TreeSet<>();
+    while (pairs.size() < count) {
+      pairs.add(Pairs.fromComparables(
+          (long) random.nextInt(bound) - bound / 2,
+          (long) random.nextInt(bound) - bound / 2));
+    }
+    return pairs;
+  }
+
+  private static CompressedPairSet compress(
+      final Iterable<? extends Pair<Long, Long>> pairs) {
+    final List<Pair<Long, Long>> list = new ArrayList<>();
+    for (final Pair<Long, Long> pair : pairs) {
+      list.add(pair);
+    }
+    return Pairs.toCompressedSet(list);
+  }
+
+  private static void assertSameElements(
+      final Iterable<? extends Pair<Long, Long>> expected,
+      final CompressedPairSet actual) {
+    final Iterator<Pair<Long, Long>> iterator = actual.iterator();
+    int count = 0;
+    for (final Pair<Long, Long> pair : expected) {
+      Assert.assertTrue(iterator.hasNext());
+      Assert.assertEquals(pair, iterator.next());
+      count += 1;
+    }
+    Assert.assertFalse(iterator.hasNext());
+    Assert.assertEquals(count, actual.size());
+  }
+
+  @Test
+  public void iteratesInLexicographicOrder() {
+    final TreeSet<ComparablePair<Long, Long>> pairs = randomPairs(
+        new Random(1), 1000, 100);
+    final List<Pair<Long, Long>> shuffled = new ArrayList<Pair<Long, Long>>(
+        pairs);
+    Collections.shuffle(shuffled, new Random(2));
+    shuffled.addAll(shuffled.subList(0, 100));
+    assertSameElements(pairs, Pairs.toCompressedSet(shuffled));
+  }
+
+  @Test
+  public void containsExactlyTheGivenPairs() {
+    final TreeSet<ComparablePair<Long, Long>> pairs = randomPairs(
+        new Random(3), 500, 60);
+    final CompressedPairSet set = compress(pairs);
+    for (long a = -31; a <= 31; a++) {
+      for (long b = -31; b <= 31; b++) {
+        Assert.assertEquals(pairs.contains(Pairs.fromComparables(a, b)),
+            set.contains(a, b));
+      }
+    }
+  }
+
+  @Test
+  public void handlesExtremeValues() {
+    final List<Pair<Long, Long>> pairs = new ArrayList<>();
+    pairs.add(Pairs.from(Long.MAX_VALUE, Long.MIN_VALUE));
+    pairs.add(Pairs.from(Long.MIN_VALUE, Long.MAX_VALUE));
+    pairs.add(Pairs.from(Long.MIN_VALUE, Long.MIN_VALUE));
+    final CompressedPairSet set = Pairs.toCompressedSet(pairs);
+    Assert.assertTrue(set.contains(Long.MIN_VALUE, Long.MIN_VALUE));
+    Assert.assertTrue(set.contains(Long.MAX_VALUE, Long.MIN_VALUE));
+    Assert.assertFalse(set.contains(Long.MAX_VALUE, Long.MAX_VALUE));
+    final CompressedPairSet.Cursor cursor = set.cursor();
+    Assert.assertTrue(cursor.next());
+    Assert.assertEquals(Long.MIN_VALUE, cursor.second());
+    Assert.assertTrue(cursor.seek(0, 0));
+    Assert.assertEquals(Long.MAX_VALUE, cursor.first());
+    Assert.assertFalse(cursor.next());
+  }
+
+  @Test
+  public void seekOnEmptySet() {
+    final CompressedPairSet.Cursor cursor = CompressedPairSet.empty().cursor();
+    Assert.assertFalse(cursor.seek(1, 2));
+    Assert.assertFalse(cursor.isValid());
+    Assert.assertFalse(cursor.next());
+    Assert.assertFalse(Pairs.toCompressedSet(new ArrayList<Pair<Long, Long>>())
+        .cursor().seek(Long.MIN_VALUE, Long.MIN_VALUE));
+  }
+
+  @Test
+  public void fromIntegerPairsWidensComponents() {
+    final List<Pair<Integer, Integer>> pairs = new ArrayList<>();
+    pairs.add(Pairs.from(2, -1));
+    pairs.add(Pairs.from(1, 7));
+    final CompressedPairSet set = CompressedPairSet.fromIntegerPairs(pairs);
+    Assert.assertEquals(2, set.size());
+    Assert.assertTrue(set.contains(2, -1));
+    Assert.assertEquals(Pairs.from(1L, 7L), set.iterator().next());
+  }
+
+  @Test
+  public void intersectionAndUnion() {
+    final Random random = new Random(4);
+    final TreeSet<ComparablePair<Long, Long>> left = randomPairs(
+        random, 3000, 200);
+    final TreeSet<ComparablePair<Long, Long>> right = randomPairs(
+        random, 2000, 200);
+    final TreeSet<ComparablePair<Long, Long>> intersection = new TreeSet<>(
+        left);
+    intersection.retainAll(right);
+    final TreeSet<ComparablePair<Long, Long>> union = new TreeSet<>(left);
+    union.addAll(right);
+    final CompressedPairSet compressedLeft = compress(left);
+    final CompressedPairSet compressedRight = compress(right);
+    assertSameElements(intersection,
+        compressedLeft.intersection(compressedRight));
+    assertSameElements(union, compressedLeft.union(compressedRight));
+    Assert.assertEquals(compress(intersection),
+        compressedRight.intersection(compressedLeft));
+    Assert.assertTrue(
+        compressedLeft.intersection(CompressedPairSet.empty()).isEmpty());
+  }
+
+  @Test
+  public void byteArrayRoundTrip() {
+    final CompressedPairSet set = compress(randomPairs(
+        new Random(5), 1000, 1000));
+    final CompressedPairSet copy = CompressedPairSet.fromByteArray(
+        set.toByteArray());
+    Assert.assertEquals(set, copy);
+    Assert.assertEquals(set.hashCode(), copy.hashCode());
+    Assert.assertEquals(CompressedPairSet.empty(), CompressedPairSet
+        .fromByteArray(CompressedPairSet.empty().toByteArray()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void truncatedByteArrayIsRejected() {
+    final byte[] bytes = compress(randomPairs(new Random(6), 100, 100))
+        .toByteArray();
+    CompressedPairSet.fromByteArray(Arrays.copyOf(
+        bytes, bytes.length - 1));
+  }
+
+  /**
+   * 200 pairs <code>(i / 10, 3 * i)</code>, serialized. The header is the
+   * format version followed by the pair count as a two byte varint.
+   */
+  private static byte[] serializedPostingList() {
+    final long[] firsts = new long[200];
+    final long[] seconds = new long[200];
+    for (int i = 0; i < 200; i++) {
+      firsts[i] = i / 10;
+      seconds[i] = 3 * i;
+    }
+    final byte[] bytes = CompressedPairSet.fromArrays(firsts, seconds, 200)
+        .toByteArray();
+    Assert.assertEquals((byte) 0xC8, bytes[1]);
+    Assert.assertEquals(1, bytes[2]);
+    Assert.assertTrue(CompressedPairSet.fromByteArray(bytes).contains(5, 150));
+    return bytes;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void raisedPairCountIsRejected() {
+    final byte[] bytes = serializedPostingList();
+    bytes[1] = (byte) 0xFA; // 250
+    CompressedPairSet.fromByteArray(bytes);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void loweredPairCountIsRejected() {
+    final byte[] bytes = serializedPostingList();
+    bytes[1] = (byte) 0xBE; // 190
+    CompressedPairSet.fromByteArray(bytes);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void duplicatePairInBlockIsRejected() {
+    final byte[] bytes = serializedPostingList();
+    // the last byte is the difference of the second components of the
+    // last two pairs, (19, 594) and (19, 597)
+    Assert.assertEquals(3, bytes[bytes.length - 1]);
+    bytes[bytes.length - 1] = 0;
+    CompressedPairSet.fromByteArray(bytes);
+  }
+
+  @Test
+  public void corruptedBytesAreRejected() {
+    final byte[] original = serializedPostingList();
+    for (int i = 3; i < original.length; i++) {
+      if (original[i] < 0) {
+        continue;
+      }
+      // setting the continuation bit merges two varints
+      final byte[] bytes = original.clone();
+      bytes[i] |= 0x80;
+      try {
+        CompressedPairSet.fromByteArray(bytes);
+        Assert.fail("accepted corrupted byte " + i);
+      } catch (final IllegalArgumentException exc) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void onlyCanonicalVarintsAreAccepted() {
+    // version, size 2, head (1, 2), block length 1, difference (0, 1)
+    final byte[] canonical = { 1, 2, 1, 4, 2, 0, 1 };
+    Assert.assertEquals(
+        CompressedPairSet.fromArrays(new long[] { 1, 1 }, new long[] { 2, 3 },
+            2), CompressedPairSet.fromByteArray(canonical));
+    final byte[][] malformed = {
+        // the difference 1 encoded as two bytes
+        { 1, 2, 1, 4, 3, 0, (byte) 0x81, 0 },
+        // a size with bits beyond 64
+        { 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0x7F },
+    };
+    for (final byte[] bytes : malformed) {
+      try {
+        CompressedPairSet.fromByteArray(bytes);
+        Assert.fail("accepted " + Arrays.toString(bytes));
+      } catch (final IllegalArgumentException exc) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nullPairsAreRejected() {
+    final List<Pair<Long, Long>> pairs = new ArrayList<>();
+    pairs.add(Pairs.from(1L, 2L));
+    pairs.add(null);
+    Pairs.toCompressedSet(pairs);
+  }
+
+  @Test
+  public void sortedPostingListsCompressWell() {
+    final int count = 100000;
+    final long[] firsts = new long[count];
+    final long[] seconds = new long[count];
+    for (int i = 0; i < count; i++) {
+      firsts[i] = i / 100;
+      seconds[i] = 3 * i;
+    }
+    final CompressedPairSet set = CompressedPairSet.fromArrays(
+        firsts, seconds, count);
+    Assert.assertEquals(count, set.size());
+    Assert.assertTrue(set.sizeInBytes() * 4 < count * 16L);
+  }
+}
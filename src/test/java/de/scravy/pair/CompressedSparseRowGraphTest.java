@@ -0,0 +1,127 @@
+package de.scravy.pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressedSparseRowGraphTest {
+
+  private static List<Pair<Long, Long>> edges(final long... ids) {
+    final List<Pair<Long, Long>> edges = new ArrayList<>();
+    for (int i = 0; i < ids.length; i += 2) {
+      edges.add(Pairs.from(ids[i], ids[i + 1]));
+    }
+    return edges;
+  }
+
+  @Test
+  public void verticesAreIndexedInAscendingOrder() {
+    final CompressedSparseRowGraph graph = Pairs.toGraph(
+        edges(30, 10, 10, 20));
+    Assert.assertEquals(3, graph.vertexCount());
+    Assert.assertEquals(2, graph.edgeCount());
+    Assert.assertEquals(10, graph.vertex(0));
+    Assert.assertEquals(30, graph.vertex(2));
+    Assert.assertEquals(1, graph.indexOf(20));
+    Assert.assertTrue(graph.indexOf(15) < 0);
+  }
+
+  @Test
+  public void neighboursAreSorted() {
+    final CompressedSparseRowGraph graph = Pairs.toGraph(
+        edges(1, 3, 1, 2, 1, 4, 2, 1));
+    Assert.assertArrayEquals(new int[] { 1, 2, 3 }, graph.neighbours(0));
+    Assert.assertArrayEquals(new int[] { 0 }, graph.neighbours(1));
+    Assert.assertArrayEquals(new int[] { 3, 1, 0, 0 }, graph.degrees());
+    Assert.assertEquals(3, graph.maxDegree());
+    Assert.assertTrue(graph.hasEdge(0, 2));
+    Assert.assertFalse(graph.hasEdge(2, 0));
+  }
+
+  @Test
+  public void transposeReversesEdges() {
+    final CompressedSparseRowGraph graph = Pairs.toGraph(
+        edges(1, 3, 1, 2, 2, 3));
+    final CompressedSparseRowGraph transposed = graph.transpose();
+    Assert.assertEquals(graph.edgeCount(), transposed.edgeCount());
+    Assert.assertArrayEquals(new int[] { 0, 1 }, transposed.neighbours(2));
+    Assert.assertArrayEquals(new int[] { 0 }, transposed.neighbours(1));
+    Assert.assertEquals(0, transposed.degree(0));
+  }
+
+  @Test
+  public void breadthFirstSearchComputesHops() {
+    final CompressedSparseRowGraph graph = Pairs.toGraph(
+        edges(1, 2, 2, 3, 1, 3, 3, 4, 5, 1));
+    Assert.assertArrayEquals(new int[] { 0, 1, 1, 2, -1 },
+        graph.breadthFirstSearch(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nullComponentsAreRejected() {
+    final List<Pair<Long, Long>> edges = new ArrayList<>();
+    edges.add(Pairs.<Long, Long> from(1L, null));
+    Pairs.toGraph(edges);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nullPairsAreRejected() {
+    final List<Pair<Long, Long>> edges = edges(1, 2);
+    edges.add(null);
+    Pairs.toGraph(edges);
+  }
+
+  private static void add(final Map<Long, List<Long>> adjacency,
+      final long source, final long target) {
+    if (!adjacency.containsKey(source)) {
+      adjacency.put(source, new ArrayList<Long>());
+    }
+    adjacency.get(source).add(target);
+  }
+
+  private static void assertMatchesAdjacencyLists(
+      final Map<Long, List<Long>> adjacency,
+      final CompressedSparseRowGraph graph) {
+    int edgeCount = 0;
+    for (int v = 0; v < graph.vertexCount(); v++) {
+      final List<Long> expected = adjacency.containsKey(graph.vertex(v))
+          ? adjacency.get(graph.vertex(v)) : new ArrayList<Long>();
+      Collections.sort(expected);
+      final List<Long> actual = new ArrayList<>();
+      for (final int neighbour : graph.neighbours(v)) {
+        actual.add(graph.vertex(neighbour));
+      }
+      Assert.assertEquals(expected, actual);
+      edgeCount += expected.size();
+    }
+    Assert.assertEquals(edgeCount, graph.edgeCount());
+  }
+
+  @Test
+  public void largeGraphMatchesAdjacencyLists() {
+    final int edgeCount = 100000;
+    final Random random = new Random(42);
+    final long[] sources = new long[edgeCount];
+    final long[] targets = new long[edgeCount];
+    final Map<Long, List<Long>> adjacency = new HashMap<>();
+    final Map<Long, List<Long>> reverseAdjacency = new HashMap<>();
+    for (int i = 0; i < edgeCount; i++) {
+      // skewed, sparse ids so that some vertices have very high degrees
+      final int source = random.nextInt(1000);
+      sources[i] = (long) source * source / 1000 * 7919 - 100000;
+      targets[i] = random.nextInt(5000) * 31L;
+      add(adjacency, sources[i], targets[i]);
+      add(reverseAdjacency, targets[i], sources[i]);
+    }
+    final CompressedSparseRowGraph graph = CompressedSparseRowGraph
+        .fromArrays(sources, targets, edgeCount);
+    assertMatchesAdjacencyLists(adjacency, graph);
+    assertMatchesAdjacencyLists(reverseAdjacency, graph.transpose());
+  }
+}